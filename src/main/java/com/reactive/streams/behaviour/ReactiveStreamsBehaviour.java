@@ -1,8 +1,10 @@
 package com.reactive.streams.behaviour;
 
+import com.reactive.streams.schedulers.BlockingCallDetector;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -28,6 +30,7 @@ public class ReactiveStreamsBehaviour {
        }
 
         behaviour.fluxRunSequentially();
+        behaviour.blockingCallsCanBeDetected();
     }
 
     public void fluxAreLazy() {
@@ -123,4 +126,33 @@ public class ReactiveStreamsBehaviour {
                 })
                 .subscribe(System.out::println);
     }
+
+    public void blockingCallsCanBeDetected() {
+        // Thread.sleep is only tolerable above because it runs on main. On Schedulers.parallel() it holds a thread
+        // that everything else on that scheduler is waiting for. The BlockingCallDetector catches it there and, in
+        // INTERRUPT mode, interrupts the sleep so the flatMap fails with the operator's assembly trace
+        BlockingCallDetector detector = BlockingCallDetector.install(BlockingCallDetector.Mode.INTERRUPT,
+                Duration.ofMillis(50), true);
+
+        Flux.range(1, 3)
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(n -> {
+                    try {
+                        Thread.sleep(300);
+                        return Mono.just(n);
+                    }
+                    catch (InterruptedException e) {
+                        return Mono.error(e);
+                    }
+                })
+                .subscribe(
+                        System.out::println,
+                        error -> error.printStackTrace()
+                );
+
+        try { Thread.sleep(1000); }
+        catch (InterruptedException e) { e.printStackTrace(); }
+
+        detector.uninstall();
+    }
 }
@@ -2,12 +2,16 @@ package com.reactive.streams.manipulate;
 
 import com.reactive.streams.manipulate.api.CommentApi;
 import com.reactive.streams.manipulate.api.UserApi;
+import com.reactive.streams.manipulate.batch.BatchingSink;
+import com.reactive.streams.manipulate.batch.LoggingBatchConsumer;
+import com.reactive.streams.manipulate.cache.ReplayCache;
 import com.reactive.streams.manipulate.repo.Comment;
 import com.reactive.streams.manipulate.repo.User;
 import com.reactive.streams.manipulate.repo.UserWithComments;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 
@@ -51,6 +55,13 @@ public class ReactiveStreamsManipulate {
                 collectList().
                 subscribe(listUserValue -> System.out.println(listUserValue));
 
+        // collectList needs memory for the whole Flux and emits nothing until it completes. For bulk exports a
+        // BatchingSink emits bounded batches instead: at most 4 users, 256 estimated bytes or 100ms per batch
+        BatchingSink<User> exportSink = new BatchingSink<>(4, Duration.ofMillis(100), 256,
+                user -> user.toString().length(), new LoggingBatchConsumer<>());
+        exportSink.drain(userApi.getAllUsers()).
+                subscribe(count -> System.out.println("exported " + count + " users"));
+
         // Passing the userApi just so that we keep on working with the same set of users
         Mono<User> someUser = userApi.findUserMono(4);
         someUser.subscribe(val -> System.out.println(val.someValue));
@@ -77,10 +88,20 @@ public class ReactiveStreamsManipulate {
         userWithCommentsMono.subscribe(s -> s.display());
 
         // The Filter method allows to filter the result set on some criteria
-        Flux<User> allAdmins = getAllAdmins(userApi);
+        // Every subscription to a Flux runs it again, so subscribing twice would scan all users twice. The ReplayCache
+        // runs it once and replays the admins to later subscribers, until the users change or a minute has passed
+        ReplayCache replayCache = new ReplayCache(1000, 64 * 1024, Duration.ofMinutes(1));
+        Flux<User> allAdmins = replayCache.cache("admins",
+                getAllAdmins(userApi).doOnSubscribe(s -> System.out.println("scanning users for admins")),
+                user -> user.toString().length(),
+                userApi::getVersion);
         // take acts on a number of T in the Flux until consumed
         System.out.println(allAdmins.take(1000).subscribe(s -> System.out.println(s)));
         allAdmins.subscribe(s -> System.out.println(s));
+
+        // adding a user changes the version of the userApi, so the next subscriber scans again
+        userApi.addUser(new User(10));
+        allAdmins.subscribe(s -> System.out.println(s));
     }
 
     private Mono<User> flatMapErrorHandling(int id, UserApi userApi) {
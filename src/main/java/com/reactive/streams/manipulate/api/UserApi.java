@@ -5,16 +5,30 @@ import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UserApi {
 
-    private List<User> userList = new ArrayList<User>();
+    // copy on write, so a scan that is still iterating through getAllUsers() sees a snapshot instead of failing with a
+    // ConcurrentModificationException when addUser is called meanwhile
+    private final List<User> userList;
+
+    // bumped on every change to userList, so cached results can tell they are out of date
+    private final AtomicLong version = new AtomicLong();
 
     public UserApi() {
-        for (int i = 0; i < 10; i++) {
-            userList.add(new User(i));
+        this(10);
+    }
+
+    public UserApi(int userCount) {
+        List<User> users = new ArrayList<User>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(new User(i));
         }
+        userList = new CopyOnWriteArrayList<User>(users);
     }
 
     public User findUser(int i) {
@@ -29,8 +43,21 @@ public class UserApi {
         return Mono.just(findUser(id).toString());
     }
 
+    public List<User> findAllUsers() {
+        return Collections.unmodifiableList(userList);
+    }
+
     public Flux<User> getAllUsers() {
         return Flux.fromIterable(userList);
     }
 
+    public void addUser(User user) {
+        userList.add(user);
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
 }
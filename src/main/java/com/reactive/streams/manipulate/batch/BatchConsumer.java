@@ -0,0 +1,10 @@
+package com.reactive.streams.manipulate.batch;
+
+import java.util.List;
+
+public interface BatchConsumer<T> {
+
+    // Receives one batch emitted by a BatchingSink. The list is cleared and reused for the next batch as soon as
+    // this method returns, so implementations have to copy it if they want to hold on to the elements
+    void accept(List<T> batch) throws Exception;
+}
@@ -0,0 +1,169 @@
+package com.reactive.streams.manipulate.batch;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+public class BatchingSink<T> {
+
+    // Unlike collectList, which keeps every value of the Flux in memory and only emits once the Flux completes, this
+    // sink hands bounded batches to a BatchConsumer while the Flux is still running. A batch is emitted as soon as
+    // - it holds maxBatchSize elements
+    // - the estimated weight of its elements reaches maxBatchBytes
+    // - maxWait has passed without the batch being emitted
+    // Upstream is only ever asked for as many elements as fit into the current batch, so memory stays at one batch
+    // no matter how large the source is. The batch list itself is reused once the consumer is done with it.
+
+    private final int maxBatchSize;
+    private final Duration maxWait;
+    private final long maxBatchBytes;
+    private final ToLongFunction<? super T> weigher;
+    private final BatchConsumer<T> consumer;
+    private final Scheduler timer;
+
+    public BatchingSink(int maxBatchSize, Duration maxWait, long maxBatchBytes,
+                        ToLongFunction<? super T> weigher, BatchConsumer<T> consumer) {
+        // batches flushed by the timer are handed to the consumer on a timer thread, and consumers like
+        // FileBatchConsumer or HttpBatchConsumer block, so this must not be a non-blocking scheduler like parallel().
+        // Full batches and the last one are flushed on the thread the source emits on, publishOn(elastic()) the
+        // source if that is a non-blocking one
+        this(maxBatchSize, maxWait, maxBatchBytes, weigher, consumer, Schedulers.elastic());
+    }
+
+    public BatchingSink(int maxBatchSize, Duration maxWait, long maxBatchBytes,
+                        ToLongFunction<? super T> weigher, BatchConsumer<T> consumer, Scheduler timer) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        if (maxWait.isNegative() || maxWait.isZero()) throw new IllegalArgumentException("maxWait must be positive");
+        if (maxBatchBytes < 1) throw new IllegalArgumentException("maxBatchBytes must be at least 1");
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+        this.maxBatchBytes = maxBatchBytes;
+        this.weigher = weigher;
+        this.consumer = consumer;
+        this.timer = timer;
+    }
+
+    // Subscribes to the source and completes with the number of elements handed to the consumer, or fails with the
+    // first error of either the source or the consumer
+    public Mono<Long> drain(Publisher<? extends T> source) {
+        return Mono.create(sink -> {
+            BatchingSubscriber subscriber = new BatchingSubscriber(sink);
+            sink.onDispose(subscriber);
+            source.subscribe(subscriber);
+        });
+    }
+
+    private class BatchingSubscriber extends BaseSubscriber<T> {
+
+        private final MonoSink<Long> sink;
+        private final List<T> batch = new ArrayList<>(maxBatchSize);
+
+        // all guarded by this
+        private long batchBytes = 0;
+        private long total = 0;
+        private boolean done = false;
+
+        private Disposable tick;
+
+        BatchingSubscriber(MonoSink<Long> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            long period = maxWait.toMillis();
+            tick = timer.schedulePeriodically(this::flushOnTimeout, period, period, TimeUnit.MILLISECONDS);
+            request(maxBatchSize);
+        }
+
+        @Override
+        protected void hookOnNext(T value) {
+            synchronized (this) {
+                if (done) return;
+                batch.add(value);
+                batchBytes += weigher.applyAsLong(value);
+                if (batch.size() >= maxBatchSize || batchBytes >= maxBatchBytes) {
+                    try {
+                        flush();
+                    }
+                    catch (Exception e) {
+                        // BaseSubscriber cancels upstream and routes this to hookOnError
+                        throw Exceptions.propagate(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            synchronized (this) {
+                if (done) return;
+                done = true;
+                try {
+                    flush();
+                }
+                catch (Exception e) {
+                    sink.error(e);
+                    return;
+                }
+            }
+            sink.success(total);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            synchronized (this) {
+                if (done) return;
+                done = true;
+                batch.clear();
+            }
+            sink.error(Exceptions.unwrap(throwable));
+        }
+
+        @Override
+        protected void hookFinally(SignalType type) {
+            if (tick != null) tick.dispose();
+        }
+
+        private void flushOnTimeout() {
+            synchronized (this) {
+                if (done || batch.isEmpty()) return;
+                try {
+                    flush();
+                }
+                catch (Exception e) {
+                    done = true;
+                    batch.clear();
+                    cancel();
+                    sink.error(e);
+                }
+            }
+        }
+
+        // must hold the lock
+        private void flush() throws Exception {
+            if (batch.isEmpty()) return;
+            int emitted = batch.size();
+            consumer.accept(batch);
+            batch.clear();
+            batchBytes = 0;
+            total += emitted;
+            // replenish exactly what was drained, so buffered + requested never exceeds maxBatchSize
+            if (!done) request(emitted);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.reactive.streams.manipulate.batch;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+public class FileBatchConsumer<T> implements BatchConsumer<T>, Closeable {
+
+    private final BufferedWriter writer;
+
+    public FileBatchConsumer(Path file) throws IOException {
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void accept(List<T> batch) throws IOException {
+        // one line per element, flushed once per batch rather than once per element
+        for (T element : batch) {
+            writer.write(String.valueOf(element));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactive.streams.manipulate.batch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+public class HttpBatchConsumer<T> implements BatchConsumer<T> {
+
+    private final URL endpoint;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    // the sink waits for every upload while holding on to the batch, so a hanging server must not block it forever
+    public HttpBatchConsumer(URL endpoint, Duration connectTimeout, Duration readTimeout) {
+        if (connectTimeout.isNegative() || connectTimeout.isZero()) {
+            throw new IllegalArgumentException("connectTimeout must be positive");
+        }
+        if (readTimeout.isNegative() || readTimeout.isZero()) {
+            throw new IllegalArgumentException("readTimeout must be positive");
+        }
+        this.endpoint = endpoint;
+        this.connectTimeoutMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, connectTimeout.toMillis()));
+        this.readTimeoutMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, readTimeout.toMillis()));
+    }
+
+    @Override
+    public void accept(List<T> batch) throws IOException {
+        // every batch is POSTed as a newline delimited body, so the endpoint sees one request per batch
+        StringBuilder body = new StringBuilder();
+        for (T element : batch) {
+            body.append(element).append('\n');
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        try {
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(bytes);
+            }
+            int status = connection.getResponseCode();
+            if (status < 200 || status >= 300) {
+                throw new IOException("Batch upload to " + endpoint + " failed with status " + status);
+            }
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.reactive.streams.manipulate.batch;
+
+import java.util.List;
+
+public class LoggingBatchConsumer<T> implements BatchConsumer<T> {
+
+    private int batchCount = 0;
+
+    @Override
+    public void accept(List<T> batch) {
+        batchCount++;
+        System.out.println("batch " + batchCount + " with " + batch.size() + " elements --- Thread is : " + Thread.currentThread().getName());
+        for (T element : batch) {
+            System.out.println("\t" + element);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.reactive.streams.manipulate.cache;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+public class ReplayCache {
+
+    // Every subscription to a cold Flux runs the whole pipeline again. ReplayCache shares one run of a Flux between
+    // all of its subscribers: the first subscriber starts it, later ones join while it is running or replay the stored
+    // values once it is done. A cached run is dropped when
+    // - it is older than the ttl
+    // - the version reported for it has changed, e.g. because the underlying data was modified
+    // - it failed
+    // - more than maxEntries keys are cached, the oldest runs go first
+    // Expired and outdated runs of other keys are dropped whenever a key misses, so a key that is never asked for again
+    // does not keep its replay buffer alive.
+    // A run that produces more than maxElements values or more than maxBytes estimated bytes is not cached at all,
+    // subscribers then fall back to subscribing to the source directly until the run expires.
+    // Meant for finite sources: a run keeps going after its subscribers cancel so that it can be replayed later.
+
+    private final int maxElements;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    private final Map<String, Entry<?>> entries = new ConcurrentHashMap<>();
+
+    public ReplayCache(int maxElements, long maxBytes, Duration ttl) {
+        this(maxElements, maxBytes, ttl, 100);
+    }
+
+    public ReplayCache(int maxElements, long maxBytes, Duration ttl, int maxEntries) {
+        if (maxElements < 1) throw new IllegalArgumentException("maxElements must be at least 1");
+        if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be at least 1");
+        if (ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("ttl must be positive");
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be at least 1");
+
+        this.maxElements = maxElements;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    public <T> Flux<T> cache(String key, Flux<T> source, ToLongFunction<? super T> weigher) {
+        return cache(key, source, weigher, () -> 0L);
+    }
+
+    public <T> Flux<T> cache(String key, Flux<T> source, ToLongFunction<? super T> weigher, LongSupplier version) {
+        return Flux.from(subscriber -> subscribe(key, source, weigher, version, subscriber));
+    }
+
+    public void invalidate(String key) {
+        Entry<?> removed = entries.remove(key);
+        if (removed != null) removed.release();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void subscribe(String key, Flux<T> source, ToLongFunction<? super T> weigher, LongSupplier version,
+                               Subscriber<? super T> subscriber) {
+        long currentVersion = version.getAsLong();
+        long now = System.nanoTime();
+
+        boolean[] missed = {false};
+        Entry<T> entry = (Entry<T>) entries.compute(key, (k, existing) -> {
+            if (existing != null && existing.isFresh(now, currentVersion)) return existing;
+            if (existing != null) existing.release();
+            missed[0] = true;
+            return new Entry<>(key, source, weigher, version, currentVersion, now);
+        });
+        if (missed[0]) evict(now);
+
+        GateSubscriber<T> gate = entry.join(subscriber);
+        if (gate == null) {
+            source.subscribe(subscriber);
+            return;
+        }
+        // both may run the source or replay values to the subscriber, so neither happens while holding the entry lock
+        gate.open();
+        entry.connect();
+    }
+
+    private void evict(long now) {
+        for (Map.Entry<String, Entry<?>> cached : entries.entrySet()) {
+            Entry<?> entry = cached.getValue();
+            if (!entry.isFresh(now, entry.versionSource.getAsLong()) && entries.remove(cached.getKey(), entry)) {
+                entry.release();
+            }
+        }
+        while (entries.size() > maxEntries) {
+            Entry<?> oldest = null;
+            for (Entry<?> entry : entries.values()) {
+                if (oldest == null || entry.createdAt - oldest.createdAt < 0) oldest = entry;
+            }
+            if (oldest == null) return;
+            if (entries.remove(oldest.key, oldest)) oldest.release();
+        }
+    }
+
+    private class Entry<T> {
+
+        private final String key;
+        private final ToLongFunction<? super T> weigher;
+        private final LongSupplier versionSource;
+        private final long version;
+        private final long createdAt;
+
+        // all guarded by this
+        private ConnectableFlux<T> shared;
+        private ConnectableFlux<T> unconnected;
+        private long count = 0;
+        private long bytes = 0;
+        private boolean overflowed = false;
+
+        Entry(String key, Flux<T> source, ToLongFunction<? super T> weigher, LongSupplier versionSource, long version,
+              long createdAt) {
+            this.key = key;
+            this.weigher = weigher;
+            this.versionSource = versionSource;
+            this.version = version;
+            this.createdAt = createdAt;
+            // replay keeps at most maxElements values, and account() stops new subscribers from joining before the
+            // first of them would be dropped
+            this.shared = source
+                    .doOnNext(this::account)
+                    .doOnError(e -> entries.remove(key, this))
+                    .replay(maxElements);
+            this.unconnected = shared;
+        }
+
+        boolean isFresh(long now, long currentVersion) {
+            return version == currentVersion && now - createdAt < ttlNanos;
+        }
+
+        synchronized GateSubscriber<T> join(Subscriber<? super T> subscriber) {
+            if (shared == null) return null;
+            // attaching while holding the lock means no value can be counted, and dropped from the replay buffer,
+            // between the overflow check and the subscriber being attached. The gate holds back its requests until
+            // the lock is released, so nothing is replayed yet
+            GateSubscriber<T> gate = new GateSubscriber<>(subscriber);
+            shared.subscribe(gate);
+            return gate;
+        }
+
+        // starts the run for the first subscriber, with a synchronous source the whole run happens in this call
+        void connect() {
+            ConnectableFlux<T> run;
+            synchronized (this) {
+                run = unconnected;
+                unconnected = null;
+            }
+            if (run != null) run.connect();
+        }
+
+        // called once the entry has left the map. Subscribers that already joined keep the run alive, the cache itself
+        // lets go of it so its replay buffer can be collected once they are done
+        synchronized void release() {
+            shared = null;
+        }
+
+        private synchronized void account(T value) {
+            if (overflowed) return;
+            count++;
+            bytes += weigher.applyAsLong(value);
+            if (count > maxElements || bytes > maxBytes) {
+                overflowed = true;
+                shared = null;
+            }
+        }
+    }
+
+    // Passes everything on to the actual subscriber, but only hands it the subscription once open() is called. Until
+    // then no values are requested, and a completion or error of an empty replay is held back.
+    private static class GateSubscriber<T> implements Subscriber<T> {
+
+        private final Subscriber<? super T> actual;
+
+        // all guarded by this
+        private Subscription upstream;
+        private boolean open = false;
+        private boolean started = false;
+        private boolean pendingComplete = false;
+        private Throwable pendingError;
+
+        GateSubscriber(Subscriber<? super T> actual) {
+            this.actual = actual;
+        }
+
+        void open() {
+            Subscription subscription;
+            synchronized (this) {
+                open = true;
+                subscription = upstream;
+            }
+            if (subscription != null) start(subscription);
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            boolean start;
+            synchronized (this) {
+                upstream = subscription;
+                start = open;
+            }
+            if (start) start(subscription);
+        }
+
+        private void start(Subscription subscription) {
+            actual.onSubscribe(subscription);
+
+            boolean complete;
+            Throwable error;
+            synchronized (this) {
+                started = true;
+                complete = pendingComplete;
+                error = pendingError;
+            }
+            if (error != null) actual.onError(error);
+            else if (complete) actual.onComplete();
+        }
+
+        @Override
+        public void onNext(T value) {
+            // values only arrive after actual requested them from within or after onSubscribe
+            actual.onNext(value);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                if (!started) {
+                    pendingError = throwable;
+                    return;
+                }
+            }
+            actual.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                if (!started) {
+                    pendingComplete = true;
+                    return;
+                }
+            }
+            actual.onComplete();
+        }
+    }
+}
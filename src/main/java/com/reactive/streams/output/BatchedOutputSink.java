@@ -0,0 +1,271 @@
+package com.reactive.streams.output;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.util.concurrent.Queues;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class BatchedOutputSink implements Closeable {
+
+    // subscribe(System.out::println) makes every emitting thread take the lock of System.out and write one line at a
+    // time, so as soon as several schedulers emit at once they mostly wait for each other.
+    // A BatchedOutputSink hands out subscribers that only put their values on a lock-free multi-producer queue. A single
+    // writer thread takes them off, encodes them as lines into one reused direct ByteBuffer, and writes that buffer to
+    // the channel whenever it is full or the queue runs empty.
+    // Each subscriber requests prefetch values up front and only requests more once the writer has written them, so the
+    // queue never holds more than prefetch values per subscriber. Those requests are issued by a separate requester
+    // thread: a Flux without publishOn or subscribeOn emits on whichever thread requests, and run from the writer its
+    // operators would hold up the writing of every other subscriber's lines.
+    // Output is written asynchronously: close() waits for everything queued so far to be written.
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_PREFETCH = 256;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final int prefetch;
+
+    private final Queue<Line> queue = Queues.<Line>unboundedMultiproducer().get();
+    private final Thread writer;
+    private final ExecutorService requester = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "output-sink-requester");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread shutdownHook;
+
+    // only touched by the writer thread
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final int maxBytesPerChar = (int) Math.ceil(encoder.maxBytesPerChar());
+
+    // subscribers between their check of closed and the end of their offer, the writer only stops once this is 0
+    private final AtomicInteger offering = new AtomicInteger();
+
+    private volatile boolean parked = false;
+    private volatile boolean closed = false;
+
+    public BatchedOutputSink(WritableByteChannel channel, boolean closeChannel, int bufferSize, int prefetch) {
+        if (bufferSize < 16) throw new IllegalArgumentException("bufferSize must be at least 16");
+        if (prefetch < 1) throw new IllegalArgumentException("prefetch must be at least 1");
+
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.prefetch = prefetch;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+
+        this.writer = new Thread(this::writeLoop, "output-sink-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        // the writer is a daemon thread, so anything still queued when the JVM exits is written by this hook
+        this.shutdownHook = new Thread(this::close, "output-sink-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public static BatchedOutputSink stdout() {
+        // the channel is shared with System.out, closing it would close System.out as well
+        FileChannel stdout = new FileOutputStream(FileDescriptor.out).getChannel();
+        return new BatchedOutputSink(stdout, false, DEFAULT_BUFFER_SIZE, DEFAULT_PREFETCH);
+    }
+
+    public static BatchedOutputSink toFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BatchedOutputSink(channel, true, DEFAULT_BUFFER_SIZE, DEFAULT_PREFETCH);
+    }
+
+    // A new subscriber for every pipeline, used in place of System.out::println: flux.subscribe(sink.subscriber())
+    public <T> Subscriber<T> subscriber() {
+        return new LineSubscriber<>();
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        requester.shutdown();
+
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            }
+            catch (IllegalStateException e) {
+                // already shutting down
+            }
+        }
+        if (closeChannel) {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void offer(Line line) {
+        queue.offer(line);
+        if (parked) LockSupport.unpark(writer);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Line line = queue.poll();
+            if (line != null) {
+                String text;
+                try {
+                    text = line.text();
+                }
+                catch (Throwable e) {
+                    // a failing toString() must neither kill the writer nor keep the subscriber from getting more
+                    text = "<" + e + " in toString()>";
+                }
+                encode(text);
+                if (line.source != null) line.source.written();
+                continue;
+            }
+
+            // the queue ran empty, so this batch is complete
+            flush();
+            // a subscriber that saw closed still false may be about to offer, its value is written before stopping
+            if (closed && offering.get() == 0 && queue.isEmpty()) return;
+
+            parked = true;
+            if (queue.isEmpty() && !closed) LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            parked = false;
+        }
+    }
+
+    private void encode(String text) {
+        // keep lines in one piece unless a single line is larger than the whole buffer
+        if (buffer.remaining() < text.length() * maxBytesPerChar + 1) flush();
+
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush();
+                continue;
+            }
+            break;
+        }
+        encoder.flush(buffer);
+
+        if (!buffer.hasRemaining()) flush();
+        buffer.put((byte) '\n');
+    }
+
+    private void flush() {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            // the lines of this batch are lost, but subscribers keep getting their requests so nothing hangs
+            e.printStackTrace();
+        }
+        buffer.clear();
+    }
+
+    private static class Line {
+
+        final Object value;
+        final LineSubscriber<?> source;
+
+        Line(Object value, LineSubscriber<?> source) {
+            this.value = value;
+            this.source = source;
+        }
+
+        String text() {
+            return String.valueOf(value);
+        }
+    }
+
+    private class LineSubscriber<T> extends BaseSubscriber<T> {
+
+        // request more once three quarters of the prefetch has been written, like Reactor's own operators do
+        private final int limit = Math.max(1, prefetch - (prefetch >> 2));
+
+        // only touched by the writer thread
+        private int written = 0;
+
+        private final Runnable requestMore = () -> request(limit);
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (closed) {
+                cancel();
+                return;
+            }
+            request(prefetch);
+        }
+
+        @Override
+        protected void hookOnNext(T value) {
+            if (!offerUnlessClosed(new Line(value, this))) cancel();
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            offerUnlessClosed(new Line("Error: " + throwable, null));
+        }
+
+        private boolean offerUnlessClosed(Line line) {
+            // counting before checking closed means the writer either sees this offer in flight or the subscriber
+            // sees closed. Once the writer is gone nothing offered would ever be written
+            offering.incrementAndGet();
+            try {
+                if (closed) return false;
+                offer(line);
+                return true;
+            }
+            finally {
+                offering.decrementAndGet();
+            }
+        }
+
+        void written() {
+            if (++written == limit) {
+                written = 0;
+                requester.execute(requestMore);
+            }
+        }
+    }
+}
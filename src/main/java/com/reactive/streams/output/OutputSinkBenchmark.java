@@ -0,0 +1,90 @@
+package com.reactive.streams.output;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+public class OutputSinkBenchmark {
+
+    // Writes the same number of lines from 1 to N producing schedulers, where N is the number of available processors,
+    // once through a PrintStream like System.out::println does and once through a BatchedOutputSink. Both write to a
+    // temporary file so the console is not flooded. The time includes writing out everything that was queued.
+
+    private static final int ELEMENTS = 2_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Path file = Files.createTempFile("output-sink-benchmark", ".txt");
+        try {
+            // warm up the JIT for both paths before measuring anything
+            runPrintStream(file, cores);
+            runSink(file, cores);
+
+            for (int producers = 1; producers <= cores; producers++) {
+                long printStream = Long.MAX_VALUE;
+                long sink = Long.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    printStream = Math.min(printStream, runPrintStream(file, producers));
+                    sink = Math.min(sink, runSink(file, producers));
+                }
+                System.out.println(producers + " producers: PrintStream " + perSecond(printStream)
+                        + " elements/s, BatchedOutputSink " + perSecond(sink) + " elements/s");
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static long runPrintStream(Path file, int producers) throws Exception {
+        // autoflush on println, like System.out
+        try (PrintStream out = new PrintStream(new FileOutputStream(file.toFile()), true)) {
+            long start = System.nanoTime();
+            produce(producers, flux -> flux.subscribe(out::println));
+            return System.nanoTime() - start;
+        }
+    }
+
+    private static long runSink(Path file, int producers) throws Exception {
+        BatchedOutputSink sink = BatchedOutputSink.toFile(file);
+        long start = System.nanoTime();
+        produce(producers, flux -> flux.subscribe(sink.subscriber()));
+        // close waits for the writer to write out everything still queued
+        sink.close();
+        return System.nanoTime() - start;
+    }
+
+    private static void produce(int producers, Consumer<Flux<Integer>> subscribe) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(producers);
+        List<Scheduler> schedulers = new ArrayList<>();
+        int perProducer = ELEMENTS / producers;
+
+        for (int i = 0; i < producers; i++) {
+            Scheduler scheduler = Schedulers.newSingle("producer-" + i);
+            schedulers.add(scheduler);
+            subscribe.accept(Flux.range(i * perProducer, perProducer)
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> done.countDown()));
+        }
+
+        done.await();
+        for (Scheduler scheduler : schedulers) {
+            scheduler.dispose();
+        }
+    }
+
+    private static long perSecond(long nanos) {
+        return (long) (ELEMENTS / (nanos / 1_000_000_000.0));
+    }
+}
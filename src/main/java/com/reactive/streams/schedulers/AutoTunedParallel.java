@@ -0,0 +1,145 @@
+package com.reactive.streams.schedulers;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class AutoTunedParallel {
+
+    // Flux.parallel() picks its rails and prefetch without knowing anything about the work, and hands out single
+    // elements round-robin. For CPU-bound maps and filters over a list this class instead
+    // - runs the first SAMPLE_SIZE elements on the subscribing thread to measure the cost per element
+    // - stays sequential if the remaining work is too small to be worth the thread hops
+    // - otherwise splits the rest into contiguous index ranges of about TARGET_CHUNK_NANOS of work each
+    // - runs up to maxRails of those ranges at a time on the given scheduler, merging them back in index order if asked
+    //   to
+    // The ranges are merged with flatMap / flatMapSequential rather than ParallelFlux: its ordered() merge never passes
+    // on the error of a rail with a small prefetch, which is what the tuned ranges use, and the Flux would hang.
+
+    private static final int SAMPLE_SIZE = 64;
+    private static final long TARGET_CHUNK_NANOS = 100_000;
+    private static final long MIN_PARALLEL_NANOS = 1_000_000;
+    private static final int CHUNKS_PER_RAIL = 4;
+    private static final int MAX_PREFETCH = 4;
+
+    private final int maxRails;
+    private final Scheduler scheduler;
+
+    public AutoTunedParallel() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public AutoTunedParallel(int maxRails) {
+        this(maxRails, Schedulers.parallel());
+    }
+
+    public AutoTunedParallel(int maxRails, Scheduler scheduler) {
+        if (maxRails < 1) throw new IllegalArgumentException("maxRails must be at least 1");
+        this.maxRails = maxRails;
+        this.scheduler = scheduler;
+    }
+
+    public <T, R> Flux<R> map(List<T> source, Function<? super T, ? extends R> mapper, boolean ordered) {
+        // null means "drop" to run(), so a mapper returning null has to fail here, the way Flux.map would
+        return run(source, value -> Objects.requireNonNull(mapper.apply(value), "The mapper returned a null value."),
+                ordered);
+    }
+
+    public <T> Flux<T> filter(List<T> source, Predicate<? super T> predicate, boolean ordered) {
+        return run(source, value -> predicate.test(value) ? value : null, ordered);
+    }
+
+    // step returns null for values that filter() drops
+    private <T, R> Flux<R> run(List<T> source, Function<? super T, ? extends R> step, boolean ordered) {
+        return Flux.defer(() -> {
+            int size = source.size();
+            int sampled = Math.min(size, SAMPLE_SIZE);
+
+            List<R> sampleResults = new ArrayList<>(sampled);
+            long start = System.nanoTime();
+            applyRange(source, 0, sampled, step, sampleResults);
+            long costPerElement = Math.max(1, (System.nanoTime() - start) / Math.max(1, sampled));
+
+            Plan plan = Plan.tune(size - sampled, costPerElement, maxRails);
+            Flux<R> rest;
+            if (plan.rails == 1) {
+                rest = Flux.fromIterable(source.subList(sampled, size))
+                        .handle((value, sink) -> {
+                            R result = step.apply(value);
+                            if (result != null) sink.next(result);
+                        });
+            }
+            else {
+                rest = parallelRanges(source, sampled, plan, step, ordered);
+            }
+            return Flux.fromIterable(sampleResults).concatWith(rest);
+        });
+    }
+
+    private <T, R> Flux<R> parallelRanges(List<T> source, int offset, Plan plan,
+                                          Function<? super T, ? extends R> step, boolean ordered) {
+        int size = source.size();
+        int chunks = (size - offset + plan.batchSize - 1) / plan.batchSize;
+
+        Function<Integer, Mono<List<R>>> range = index -> Mono.fromCallable(() -> {
+            int from = offset + index * plan.batchSize;
+            int to = Math.min(size, from + plan.batchSize);
+            List<R> results = new ArrayList<>(to - from);
+            applyRange(source, from, to, step, results);
+            return results;
+        }).subscribeOn(scheduler);
+
+        // flatMapSequential runs the ranges just as concurrently but buffers finished ones until all ranges before
+        // them are emitted, which restores the order of the source
+        Flux<List<R>> processed = ordered
+                ? Flux.range(0, chunks).flatMapSequential(range, plan.rails, plan.prefetch)
+                : Flux.range(0, chunks).flatMap(range, plan.rails, plan.prefetch);
+
+        return processed.concatMapIterable(results -> results);
+    }
+
+    private static <T, R> void applyRange(List<T> source, int from, int to,
+                                          Function<? super T, ? extends R> step, List<R> results) {
+        for (int i = from; i < to; i++) {
+            R result = step.apply(source.get(i));
+            if (result != null) results.add(result);
+        }
+    }
+
+    static class Plan {
+
+        final int rails;
+        final int prefetch;
+        final int batchSize;
+
+        private Plan(int rails, int prefetch, int batchSize) {
+            this.rails = rails;
+            this.prefetch = prefetch;
+            this.batchSize = batchSize;
+        }
+
+        static Plan tune(int remaining, long costPerElement, int maxRails) {
+            long work = remaining * costPerElement;
+            if (remaining == 0 || work < MIN_PARALLEL_NANOS) return new Plan(1, 1, Math.max(1, remaining));
+
+            int rails = (int) Math.min(maxRails, work / TARGET_CHUNK_NANOS);
+            rails = Math.max(1, rails);
+
+            // big enough to amortise the hop to another thread, small enough that every rail gets several ranges
+            long byCost = Math.max(1, TARGET_CHUNK_NANOS / costPerElement);
+            long byBalance = Math.max(1, remaining / ((long) rails * CHUNKS_PER_RAIL));
+            int batchSize = (int) Math.min(byCost, byBalance);
+
+            int chunks = (remaining + batchSize - 1) / batchSize;
+            int prefetch = Math.max(1, Math.min(MAX_PREFETCH, chunks / rails));
+            return new Plan(rails, prefetch, batchSize);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.reactive.streams.schedulers;
+
+import reactor.core.publisher.Hooks;
+import reactor.core.scheduler.NonBlocking;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BlockingCallDetector {
+
+    // Threads of Schedulers.parallel() and Schedulers.single() (and newParallel / newSingle) are marked by Reactor with
+    // the NonBlocking interface. Reactor itself only uses that marker to reject block() calls that would have to wait,
+    // nothing stops a Thread.sleep in a flatMap or a read from a socket from holding the thread and starving everything
+    // else queued on it.
+    //
+    // Once installed, a daemon thread samples the stacks of all NonBlocking threads every sampleInterval and reports
+    // the ones caught inside a blocking JDK call (sleep, wait, park, socket, file or DNS I/O). A worker that is parked
+    // waiting for its next task is idle, not blocked.
+    // - LOG prints the call together with the stack of the blocked thread, which names the operator and the lambda
+    // - INTERRUPT does the same, and if the thread is caught in sleep, wait or a park that gives up on an interrupt (a
+    //   latch or condition await, lockInterruptibly, a timed tryLock, Future.get) it is interrupted so that call fails
+    //   inside the operator. A plain lock() parks too, but ignores the interrupt and only leaves it pending. With assemblyTraces enabled that error carries the assembly trace of the operator, as do
+    //   the errors Reactor raises for block(). I/O is only reported: interrupting a channel closes it for good, and a
+    //   stream ignores the interrupt and leaves it pending for the next sleep or park of the same task
+    // The thread is sampled again right before it is interrupted and left alone if its stack has changed since.
+    // Sampling only costs a stack walk per NonBlocking thread per interval, so it can stay on during load tests.
+    // Short blocking calls can fall between two samples: the detector is meant to find the regular offenders.
+
+    public enum Mode { LOG, INTERRUPT }
+
+    private static final AtomicReference<BlockingCallDetector> INSTALLED = new AtomicReference<>();
+
+    // class name and method name prefix of native frames that block the calling thread and give up on an interrupt
+    private static final String[][] INTERRUPTIBLE_CALLS = {
+            {"java.lang.Thread", "sleep"},
+            {"java.lang.Object", "wait"},
+            {"jdk.internal.misc.Unsafe", "park"},
+            {"sun.misc.Unsafe", "park"},
+    };
+
+    // class name and method name of the JDK frames a park has to be called from for an interrupt to end the wait.
+    // AbstractQueuedSynchronizer backs the locks, latches, semaphores and blocking queues of java.util.concurrent
+    private static final String[][] INTERRUPTIBLE_PARK_CALLERS = {
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer", "acquireInterruptibly"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer", "acquireSharedInterruptibly"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer", "tryAcquireNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer", "tryAcquireSharedNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject", "await"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject", "awaitNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedSynchronizer$ConditionObject", "awaitUntil"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer", "acquireInterruptibly"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer", "acquireSharedInterruptibly"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer", "tryAcquireNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer", "tryAcquireSharedNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer$ConditionObject", "await"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer$ConditionObject", "awaitNanos"},
+            {"java.util.concurrent.locks.AbstractQueuedLongSynchronizer$ConditionObject", "awaitUntil"},
+            {"java.util.concurrent.FutureTask", "get"},
+    };
+
+    // class name and method name prefix of native frames doing blocking I/O
+    private static final String[][] IO_CALLS = {
+            {"java.io.FileInputStream", "read"},
+            {"java.io.FileOutputStream", "write"},
+            {"java.io.RandomAccessFile", "read"},
+            {"java.io.RandomAccessFile", "write"},
+            {"sun.nio.ch.FileDispatcherImpl", ""},
+            {"sun.nio.ch.UnixFileDispatcherImpl", ""},
+            {"sun.nio.ch.SocketDispatcher", ""},
+            {"sun.nio.ch.Net", "poll"},
+            {"sun.nio.ch.Net", "connect"},
+            {"sun.nio.ch.Net", "accept"},
+            {"java.net.SocketInputStream", "socketRead"},
+            {"java.net.SocketOutputStream", "socketWrite"},
+            {"java.net.PlainSocketImpl", "socket"},
+            {"java.net.Inet4AddressImpl", "lookup"},
+            {"java.net.Inet6AddressImpl", "lookup"},
+    };
+
+    private final Mode mode;
+    private final long sampleIntervalMillis;
+    private final boolean assemblyTraces;
+    private final Thread sampler;
+
+    // only touched by the sampler thread: the stack each thread was last reported with, so a long sleep is reported once
+    private final Map<Thread, StackTraceElement[]> lastReported = new HashMap<>();
+
+    private volatile boolean running = true;
+
+    private BlockingCallDetector(Mode mode, Duration sampleInterval, boolean assemblyTraces) {
+        this.mode = mode;
+        this.sampleIntervalMillis = Math.max(1, sampleInterval.toMillis());
+        this.assemblyTraces = assemblyTraces;
+        this.sampler = new Thread(this::sampleLoop, "blocking-call-detector");
+        this.sampler.setDaemon(true);
+    }
+
+    public static BlockingCallDetector install(Mode mode) {
+        return install(mode, Duration.ofMillis(100), false);
+    }
+
+    public static BlockingCallDetector install(Mode mode, Duration sampleInterval, boolean assemblyTraces) {
+        // assembly traces are only attached to errors travelling through operators, which LOG never causes
+        if (assemblyTraces && mode != Mode.INTERRUPT) {
+            throw new IllegalArgumentException("assemblyTraces only applies to Mode.INTERRUPT");
+        }
+        BlockingCallDetector detector = new BlockingCallDetector(mode, sampleInterval, assemblyTraces);
+        if (!INSTALLED.compareAndSet(null, detector)) {
+            throw new IllegalStateException("A BlockingCallDetector is already installed");
+        }
+        // recording assembly traces is what makes Reactor errors point at the line that built the operator, it has a
+        // cost on every operator assembled from now on, hence opt-in
+        if (assemblyTraces) Hooks.onOperatorDebug();
+        detector.sampler.start();
+        return detector;
+    }
+
+    public void uninstall() {
+        if (!INSTALLED.compareAndSet(this, null)) return;
+        running = false;
+        sampler.interrupt();
+        if (assemblyTraces) Hooks.resetOnOperatorDebug();
+    }
+
+    private void sampleLoop() {
+        while (running) {
+            try {
+                Thread.sleep(sampleIntervalMillis);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            sample();
+        }
+    }
+
+    private void sample() {
+        Map<Thread, StackTraceElement[]> blockedNow = new HashMap<>();
+        for (Thread thread : nonBlockingThreads()) {
+            Thread.State state = thread.getState();
+            if (state == Thread.State.NEW || state == Thread.State.TERMINATED) continue;
+
+            StackTraceElement[] stack = thread.getStackTrace();
+            if (stack.length == 0 || !isBlockingCall(stack[0]) || isIdleWorker(stack)) continue;
+
+            blockedNow.put(thread, stack);
+            if (!Arrays.equals(stack, lastReported.get(thread))) {
+                report(thread, stack);
+            }
+        }
+        lastReported.clear();
+        lastReported.putAll(blockedNow);
+    }
+
+    private void report(Thread thread, StackTraceElement[] stack) {
+        String call = stack[0].getClassName() + "." + stack[0].getMethodName();
+        BlockingCallException blockingCall = new BlockingCallException(
+                "Blocking call " + call + " on non-blocking thread " + thread.getName());
+        blockingCall.setStackTrace(stack);
+        blockingCall.printStackTrace();
+
+        if (mode == Mode.INTERRUPT && isInterruptible(stack)) interruptIfStillIn(thread, stack);
+    }
+
+    private static void interruptIfStillIn(Thread thread, StackTraceElement[] reported) {
+        // the sample may be stale by now, only interrupt if the thread is still waiting in the same call from the same
+        // place. Every park ends in the same native frame, so comparing the top frame alone would not tell a thread
+        // that has moved on to the next task apart
+        if (!Arrays.equals(thread.getStackTrace(), reported)) return;
+        thread.interrupt();
+    }
+
+    private static Thread[] nonBlockingThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) root = root.getParent();
+
+        Thread[] threads = new Thread[root.activeCount() * 2 + 1];
+        int count = root.enumerate(threads, true);
+
+        int marked = 0;
+        for (int i = 0; i < count; i++) {
+            if (threads[i] instanceof NonBlocking) threads[marked++] = threads[i];
+        }
+        Thread[] result = new Thread[marked];
+        System.arraycopy(threads, 0, result, 0, marked);
+        return result;
+    }
+
+    private static boolean isBlockingCall(StackTraceElement frame) {
+        return matches(frame, INTERRUPTIBLE_CALLS) || matches(frame, IO_CALLS);
+    }
+
+    private static boolean isInterruptible(StackTraceElement[] stack) {
+        if (!matches(stack[0], INTERRUPTIBLE_CALLS)) return false;
+        // a park inside a channel operation, e.g. waiting for its position lock, would still close the channel
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("sun.nio.ch.")
+                    || frame.getClassName().startsWith("java.nio.channels.")) return false;
+        }
+        if (!stack[0].getMethodName().equals("park")) return true;
+
+        // a park only gives up on an interrupt if the JDK call waiting with it does, so look at the frames up to the
+        // first one outside of the JDK
+        for (int i = 1; i < stack.length && isJdkFrame(stack[i]); i++) {
+            for (String[] caller : INTERRUPTIBLE_PARK_CALLERS) {
+                if (stack[i].getClassName().equals(caller[0]) && stack[i].getMethodName().equals(caller[1])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJdkFrame(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.");
+    }
+
+    private static boolean matches(StackTraceElement frame, String[][] calls) {
+        if (!frame.isNativeMethod()) return false;
+        for (String[] call : calls) {
+            if (frame.getClassName().equals(call[0]) && frame.getMethodName().startsWith(call[1])) return true;
+        }
+        return false;
+    }
+
+    private static boolean isIdleWorker(StackTraceElement[] stack) {
+        // between two tasks a scheduler thread parks in ThreadPoolExecutor.getTask, waiting for the next one
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().equals("java.util.concurrent.ThreadPoolExecutor")
+                    && frame.getMethodName().equals("getTask")) return true;
+        }
+        return false;
+    }
+
+    public static class BlockingCallException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        BlockingCallException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.reactive.streams.schedulers;
+
+import com.reactive.streams.manipulate.api.UserApi;
+import com.reactive.streams.manipulate.repo.User;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class ParallelScanBenchmark {
+
+    // Compares a plain sequential filter over UserApi.getAllUsers() with AutoTunedParallel using 1 to N rails, where N
+    // is the number of available processors. The predicate is deliberately CPU-bound so that the scan, not the
+    // scheduling, dominates.
+
+    private static final int USER_COUNT = 200_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        UserApi userApi = new UserApi(USER_COUNT);
+        List<User> users = userApi.findAllUsers();
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        checkErrorsArrive(users, Math.max(2, cores));
+
+        // warm up the JIT for both paths before measuring anything
+        for (int i = 0; i < ROUNDS; i++) {
+            userApi.getAllUsers().filter(ParallelScanBenchmark::expensiveMatch).count().block();
+            new AutoTunedParallel(cores).filter(users, ParallelScanBenchmark::expensiveMatch, true).count().block();
+        }
+
+        long sequential = bestOf(() -> userApi.getAllUsers()
+                .filter(ParallelScanBenchmark::expensiveMatch)
+                .count()
+                .block());
+        System.out.println("sequential filter: " + sequential / 1_000_000 + "ms");
+
+        for (int rails = 1; rails <= cores; rails++) {
+            AutoTunedParallel parallel = new AutoTunedParallel(rails);
+            long ordered = bestOf(() -> parallel.filter(users, ParallelScanBenchmark::expensiveMatch, true)
+                    .count()
+                    .block());
+            long unordered = bestOf(() -> parallel.filter(users, ParallelScanBenchmark::expensiveMatch, false)
+                    .count()
+                    .block());
+            System.out.println(rails + " rails: ordered " + ordered / 1_000_000 + "ms ("
+                    + String.format("%.2f", (double) sequential / ordered) + "x), unordered "
+                    + unordered / 1_000_000 + "ms (" + String.format("%.2f", (double) sequential / unordered) + "x)");
+        }
+    }
+
+    // A failing or null-returning mapper has to end the Flux with an error on every number of rails and in both orders,
+    // not leave the merge of the ranges waiting. block() gives up after 10 seconds if it does
+    private static void checkErrorsArrive(List<User> users, int rails) {
+        AutoTunedParallel parallel = new AutoTunedParallel(rails);
+        User last = users.get(users.size() - 1);
+        for (boolean ordered : new boolean[]{true, false}) {
+            Throwable thrown = failure(() -> parallel.map(users, user -> {
+                if (user == last) throw new IllegalStateException("mapper failed for user " + user.id);
+                return expensiveMatch(user);
+            }, ordered).count().block(Duration.ofSeconds(10)));
+            Throwable nullResult = failure(() -> parallel.map(users, user -> user == last ? null : expensiveMatch(user),
+                    ordered).count().block(Duration.ofSeconds(10)));
+            System.out.println(rails + " rails, ordered " + ordered + ": " + thrown + " / " + nullResult);
+        }
+    }
+
+    private static Throwable failure(Runnable run) {
+        try {
+            run.run();
+            return null;
+        }
+        catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static long bestOf(Supplier<Long> run) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            run.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static boolean expensiveMatch(User user) {
+        int hash = user.id;
+        for (int i = 0; i < 2_000; i++) {
+            hash = hash * 31 + user.someValue;
+            hash ^= hash >>> 7;
+        }
+        return user.isAdmin && (hash & 1) == 0;
+    }
+}
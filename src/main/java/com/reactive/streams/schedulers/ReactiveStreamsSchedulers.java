@@ -1,5 +1,7 @@
 package com.reactive.streams.schedulers;
 
+import com.reactive.streams.manipulate.api.UserApi;
+import com.reactive.streams.output.BatchedOutputSink;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Flux;
 import reactor.core.scheduler.Schedulers;
@@ -15,6 +17,11 @@ public class ReactiveStreamsSchedulers {
         // - subscribeOn method to set the scheduler for all operations on the stream
         // - publishOn to set the scheduler for all subsequent operations. overrides subscribeOn
 
+        // subscribe(System.out::println) makes every scheduler below wait for the lock of System.out. The results go
+        // through a BatchedOutputSink instead, which queues them and writes them in batches from its own thread, so
+        // they can show up a little later than the thread logging printed directly from map
+        BatchedOutputSink out = BatchedOutputSink.stdout();
+
         // the four types are:
 
         // single: a one worker thread scheduler
@@ -26,7 +33,7 @@ public class ReactiveStreamsSchedulers {
                     System.out.println("in map of: " + n + " - Thread is: " + Thread.currentThread().getName());
                     return n;
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // elastic: a scheduler that dynamically creates threads when needed, with no up limit.
         // A thread is released after 60 non-working seconds.
@@ -38,7 +45,7 @@ public class ReactiveStreamsSchedulers {
                     return n;
                 })
                 .subscribeOn(Schedulers.elastic())
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // immediate is the thread where the method configuring is done
         Mono.just("1")
@@ -48,7 +55,7 @@ public class ReactiveStreamsSchedulers {
                     System.out.println("in map of: " + n + " - Thread is: " + Thread.currentThread().getName());
                     return n;
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // parallel is worker with as many threads as the CPU has cores
         // the amount of threads are calculated with
@@ -60,7 +67,7 @@ public class ReactiveStreamsSchedulers {
                   System.out.println("in map of: " + n + " - Thread is: " + Thread.currentThread().getName());
                       return n;
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // it doesn't matter when the subscribeOn is called. this is equivalent to the previous example
         Mono.just("1")
@@ -70,7 +77,7 @@ public class ReactiveStreamsSchedulers {
                     return n;
                 })
                 .subscribeOn(Schedulers.parallel())
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // only the first call to subscribeOn takes effect!
         Mono.just(1).
@@ -81,7 +88,7 @@ public class ReactiveStreamsSchedulers {
                     System.out.println("in map of: " + n + " - Thread is: " + Thread.currentThread().getName());
                     return n;
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // publishOn only sets the thread for the following instructions
         Mono.just("1")
@@ -89,7 +96,7 @@ public class ReactiveStreamsSchedulers {
                 .map(Integer::valueOf) // -> on single
                 .publishOn(Schedulers.parallel()) // -> on single
                 .map(x -> x * x) // -> on parallel
-                .subscribe(System.out::println); // -> on parallel
+                .subscribe(out.subscriber()); // -> on parallel
 
         // Since flatMap returns a new Mono or Flux, these streams can have their own scheduler set, independent of the
         // parent. We can use different threads for different outcomes in the stream like this
@@ -102,7 +109,7 @@ public class ReactiveStreamsSchedulers {
                     }
                     else return Mono.just(n).subscribeOn(Schedulers.elastic());
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // Flux are sequential by default, but can be made parallel
         // the .sequential() method make a stream sequential again
@@ -113,11 +120,20 @@ public class ReactiveStreamsSchedulers {
                     System.out.println("in map of: " + n + " - Thread is: " + Thread.currentThread().getName());
                     return n;
                 })
-                .subscribe(System.out::println);
+                .subscribe(out.subscriber());
 
         // give the parallel flux time to produce and consume a bunch of values
         sleepAndPrintBreak();
 
+        // parallel() above uses default rails and prefetch and hands out values round-robin. AutoTunedParallel measures
+        // the cost per element first, then picks rails, prefetch and batch size and splits the list by index ranges.
+        // With ordered = true the results come back in the order of the list. See ParallelScanBenchmark for timings
+        UserApi userApi = new UserApi(1000);
+        new AutoTunedParallel()
+                .filter(userApi.findAllUsers(), user -> user.isAdmin, true)
+                .count()
+                .subscribe(n -> System.out.println("admins found: " + n));
+
         // Now let's combine all of what we know
 
         // flatMap without changing scheduler